@@ -125,7 +125,8 @@ public class FeedImageView extends ImageView {
         }
 
         //The pre-existing content of this view didn't match the current Url
-        //Load the new image from the network
+        //Load the new image from the network, downsized to the view's width
+        int maxWidth = isFullyWrapContent ? 0 : width;
         ImageLoader.ImageContainer newContainer = mImageLoader.get(mUrl,
                 new ImageLoader.ImageListener() {
                     @Override
@@ -170,7 +171,7 @@ public class FeedImageView extends ImageView {
                             mObserver.onError();
                         }
                     }
-                });
+                }, maxWidth, 0);
 
         //Update the ImageContainer to be the new bitmap container.
         mImageContainer = newContainer;
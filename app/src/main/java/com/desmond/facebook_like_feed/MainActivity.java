@@ -3,10 +3,16 @@ package com.desmond.facebook_like_feed;
 import android.annotation.SuppressLint;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.ActionBarActivity;
+import android.support.v7.widget.SearchView;
+import android.text.TextUtils;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.ViewTreeObserver;
 import android.widget.ListView;
 
 import com.android.volley.Cache;
@@ -16,8 +22,12 @@ import com.android.volley.VolleyError;
 import com.android.volley.VolleyLog;
 import com.android.volley.toolbox.JsonObjectRequest;
 import com.desmond.facebook_like_feed.adapter.FeedListAdapter;
+import com.desmond.facebook_like_feed.adapter.FeedRowFactory;
 import com.desmond.facebook_like_feed.app.AppController;
+import com.desmond.facebook_like_feed.app.StartupTrace;
+import com.desmond.facebook_like_feed.data.FeedIndex;
 import com.desmond.facebook_like_feed.data.FeedItem;
+import com.desmond.facebook_like_feed.volley.TieredRequestQueue;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -30,9 +40,20 @@ import java.util.List;
 
 public class MainActivity extends ActionBarActivity {
     private static final String TAG = MainActivity.class.getSimpleName();
+
+    /** Number of feed rows to inflate ahead of time, roughly a screenful plus one */
+    private static final int ROW_POOL_SIZE = 4;
+
+    private static final String STAGE_CACHE_LOOKUP = "feed-cache-lookup";
+    private static final String STAGE_CACHE_PARSE = "feed-cache-parse";
+
     private ListView mListView;
     private FeedListAdapter mListAdapter;
+    private FeedRowFactory mRowFactory;
+    private CachedFeedTask mCachedFeedTask;
     private List<FeedItem> mFeedItems;
+    private FeedIndex mFeedIndex;
+    private String mQuery = "";
     private final String URL_FEED = "http://api.androidhive.info/feed/feed.json";
 
     @SuppressLint("NewApi")
@@ -44,8 +65,13 @@ public class MainActivity extends ActionBarActivity {
         mListView = (ListView) findViewById(R.id.list);
 
         mFeedItems = new ArrayList<FeedItem>();
+        mFeedIndex = new FeedIndex();
+
+        // Pre-inflate rows while the feed is loading
+        mRowFactory = new FeedRowFactory(this, mListView);
+        mRowFactory.prefetch(ROW_POOL_SIZE);
 
-        mListAdapter = new FeedListAdapter(this, mFeedItems);
+        mListAdapter = new FeedListAdapter(this, mFeedItems, mRowFactory);
         mListView.setAdapter(mListAdapter);
 
         // These two lines not needed,
@@ -54,47 +80,66 @@ public class MainActivity extends ActionBarActivity {
         getActionBar().setIcon(
                 new ColorDrawable(getResources().getColor(android.R.color.transparent)));
 
-        //Check for cache request
-        Cache cache = AppController.getInstance().getRequestQueue().getCache();
-        Cache.Entry entry = cache.get(URL_FEED);
-        if (entry != null) {
-            //fetch the data from the cache
-            try {
-                String data = new String(entry.data, "UTF-8");
-                parseJsonFeed(new JSONObject(data));
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            } catch (JSONException jsonException) {
-                jsonException.printStackTrace();
+        // Record when the first frame gets drawn
+        final StartupTrace trace = AppController.getInstance().getStartupTrace();
+        mListView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                trace.markFirstFrame();
+                return true;
             }
-        } else {
-            //Making fresh volley request and getting Json
-            JsonObjectRequest jsonReq = new JsonObjectRequest(Request.Method.GET,
-                    URL_FEED, null, new Response.Listener<JSONObject>() {
-                @Override
-                public void onResponse(JSONObject response) {
-                    VolleyLog.d(TAG, "Response: " + response.toString());
-                    if (response != null) {
-                        parseJsonFeed(response);
-                    }
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-                    VolleyLog.d(TAG, "Error: " + error.getMessage());
+        });
+
+        //Check for cache request off the main thread
+        mCachedFeedTask = new CachedFeedTask();
+        mCachedFeedTask.execute();
+    }
+
+    /**
+     * Making fresh volley request and getting Json
+     */
+    private void requestFeed() {
+        JsonObjectRequest jsonReq = new JsonObjectRequest(Request.Method.GET,
+                URL_FEED, null, new Response.Listener<JSONObject>() {
+            @Override
+            public void onResponse(JSONObject response) {
+                VolleyLog.d(TAG, "Response: " + response.toString());
+                if (response != null) {
+                    showFeedItems(parseJsonFeed(response));
                 }
-            });
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                VolleyLog.d(TAG, "Error: " + error.getMessage());
+            }
+        });
 
-            //Adding request to volley request queue
-            AppController.getInstance().addToRequestQueue(jsonReq);
-        }
+        //Adding request to volley request queue
+        AppController.getInstance().addToRequestQueue(jsonReq);
+    }
 
+    @Override
+    protected void onDestroy() {
+        mCachedFeedTask.cancel(false);
+        mRowFactory.cancel();
+        Log.d(TAG, "Feed rows: " + mRowFactory.getPooledCount() + " from pool, "
+                + mRowFactory.getInflatedCount() + " inflated on the spot");
+        TieredRequestQueue queue = AppController.getInstance().getRequestQueue();
+        Log.d(TAG, queue.getDecodeStats() + "; " + queue.getDecodedTierStats());
+        Log.d(TAG, AppController.getInstance().getImageLoader().getMemoryReport() + "; "
+                + AppController.getInstance().getAvatarImageLoader().getMemoryReport());
+        Log.d(TAG, AppController.getInstance().getImageLoader().getFetchReport());
+        super.onDestroy();
     }
 
     /**
-     * Parsing json response and passing he dat to feed view list adapter
+     * Parsing json response into feed items. Safe to call off the main thread.
      */
-    private void parseJsonFeed(JSONObject response) {
+    private static List<FeedItem> parseJsonFeed(JSONObject response) {
+        List<FeedItem> feedItems = new ArrayList<FeedItem>();
         try {
             JSONArray feedArray = response.getJSONArray("feed");
             for (int i = 0; i < feedArray.length(); i++) {
@@ -114,21 +159,109 @@ public class MainActivity extends ActionBarActivity {
                 String feedUrl = feedObj.isNull("url") ? null : feedObj.getString("url");
                 item.setUrl(feedUrl);
 
-                mFeedItems.add(item);
+                feedItems.add(item);
             }
-
-            // notify data changes to list adapter
-            mListAdapter.notifyDataSetChanged();
         } catch (JSONException e) {
             e.printStackTrace();
         }
+        return feedItems;
     }
 
+    /**
+     * Passing the feed items to the feed view list adapter
+     */
+    private void showFeedItems(List<FeedItem> feedItems) {
+        mFeedItems.addAll(feedItems);
+        mFeedIndex.addAll(feedItems);
+
+        // notify data changes to list adapter, keeping any search applied
+        filterFeed(mQuery);
+        AppController.getInstance().getStartupTrace().markFirstContent();
+
+        // Once the first screen of content is laid out, pre-inflated rows won't be needed
+        mListView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                mRowFactory.cancel();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Shows only the feed items matching the query, or all of them if it's empty
+     */
+    private void filterFeed(String query) {
+        mQuery = query;
+        mListAdapter.setFilter(TextUtils.isEmpty(query.trim()) ? null : mFeedIndex.search(query));
+    }
+
+    /**
+     * Reads and parses the cached feed in the background, falling back to
+     * a network request if there's nothing cached
+     */
+    private class CachedFeedTask extends AsyncTask<Void, Void, List<FeedItem>> {
+        private final StartupTrace mTrace = AppController.getInstance().getStartupTrace();
+
+        @Override
+        protected List<FeedItem> doInBackground(Void... params) {
+            mTrace.beginStage(STAGE_CACHE_LOOKUP);
+            Cache cache = AppController.getInstance().getRequestQueue().getCache();
+            Cache.Entry entry = cache.get(URL_FEED);
+            mTrace.endStage(STAGE_CACHE_LOOKUP);
+
+            if (entry == null) {
+                return null;
+            }
+
+            //fetch the data from the cache
+            mTrace.beginStage(STAGE_CACHE_PARSE);
+            List<FeedItem> feedItems = null;
+            try {
+                String data = new String(entry.data, "UTF-8");
+                feedItems = parseJsonFeed(new JSONObject(data));
+            } catch (UnsupportedEncodingException e) {
+                e.printStackTrace();
+            } catch (JSONException jsonException) {
+                jsonException.printStackTrace();
+            }
+            mTrace.endStage(STAGE_CACHE_PARSE);
+            return feedItems;
+        }
+
+        @Override
+        protected void onPostExecute(List<FeedItem> feedItems) {
+            if (feedItems != null) {
+                showFeedItems(feedItems);
+            } else {
+                requestFeed();
+            }
+        }
+    }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // Filter the feed as the search query is typed
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(
+                menu.findItem(R.id.action_search));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                filterFeed(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                filterFeed(newText);
+                return true;
+            }
+        });
         return true;
     }
 
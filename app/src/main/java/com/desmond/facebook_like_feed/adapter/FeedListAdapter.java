@@ -5,7 +5,6 @@ import android.text.Html;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.text.method.LinkMovementMethod;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
@@ -14,7 +13,6 @@ import android.widget.TextView;
 import com.android.volley.toolbox.ImageLoader;
 import com.android.volley.toolbox.NetworkImageView;
 import com.desmond.facebook_like_feed.FeedImageView;
-import com.desmond.facebook_like_feed.R;
 import com.desmond.facebook_like_feed.app.AppController;
 import com.desmond.facebook_like_feed.data.FeedItem;
 
@@ -27,21 +25,40 @@ public class FeedListAdapter extends BaseAdapter {
 
     private Context ctx;
     private List<FeedItem> feedItems;
-    private ImageLoader imageLoader = AppController.getInstance().getImageLoader();
+    private FeedRowFactory rowFactory;
+    private ImageLoader imageLoader;
+    private ImageLoader avatarImageLoader;
+
+    // Positions in feedItems to show, or null to show them all
+    private int[] filteredPositions;
 
     public FeedListAdapter(Context ctx, List<FeedItem> feedItems) {
+        this(ctx, feedItems, new FeedRowFactory(ctx, null));
+    }
+
+    public FeedListAdapter(Context ctx, List<FeedItem> feedItems, FeedRowFactory rowFactory) {
         this.ctx = ctx;
         this.feedItems = feedItems;
+        this.rowFactory = rowFactory;
+    }
+
+    /**
+     * Shows only the items at the given positions, e.g. results from
+     * {@link com.desmond.facebook_like_feed.data.FeedIndex}. Pass null to show every item.
+     */
+    public void setFilter(int[] positions) {
+        filteredPositions = positions;
+        notifyDataSetChanged();
     }
 
     @Override
     public int getCount() {
-        return feedItems.size();
+        return filteredPositions != null ? filteredPositions.length : feedItems.size();
     }
 
     @Override
     public Object getItem(int position) {
-        return feedItems.get(position);
+        return feedItems.get(toItemPosition(position));
     }
 
     @Override
@@ -51,21 +68,19 @@ public class FeedListAdapter extends BaseAdapter {
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder;
         if (convertView == null) {
-            holder = new ViewHolder();
-            convertView = LayoutInflater.from(ctx).inflate(R.layout.feed_item, null);
-            holder.name = (TextView) convertView.findViewById(R.id.name);
-            holder.timeStamp = (TextView) convertView.findViewById(R.id.timestamp);
-            holder.statusMsg = (TextView) convertView.findViewById(R.id.txtStatusMsg);
-            holder.url = (TextView) convertView.findViewById(R.id.txtUrl);
-            holder.profilePic = (NetworkImageView) convertView.findViewById(R.id.profilePic);
-            holder.feedImageView = (FeedImageView) convertView.findViewById(R.id.feedImage1);
-            convertView.setTag(holder);
+            convertView = rowFactory.obtainRow(parent);
         }
 
-        holder = (ViewHolder) convertView.getTag();
-        FeedItem item = feedItems.get(position);
+        // Fetched on first bind rather than on construction,
+        // as they may still be initializing in the background
+        if (imageLoader == null) {
+            imageLoader = AppController.getInstance().getImageLoader();
+            avatarImageLoader = AppController.getInstance().getAvatarImageLoader();
+        }
+
+        ViewHolder holder = (ViewHolder) convertView.getTag();
+        FeedItem item = feedItems.get(toItemPosition(position));
 
         holder.name.setText(item.getName());
 
@@ -96,7 +111,7 @@ public class FeedListAdapter extends BaseAdapter {
         }
 
         //User profile picture
-        holder.profilePic.setImageUrl(item.getProfilePic(), imageLoader);
+        holder.profilePic.setImageUrl(item.getProfilePic(), avatarImageLoader);
 
         //Feed image
         if (item.getImge() != null) {
@@ -118,7 +133,11 @@ public class FeedListAdapter extends BaseAdapter {
         return convertView;
     }
 
-    private class ViewHolder {
+    private int toItemPosition(int position) {
+        return filteredPositions != null ? filteredPositions[position] : position;
+    }
+
+    static class ViewHolder {
         TextView name;
         TextView timeStamp;
         TextView statusMsg;
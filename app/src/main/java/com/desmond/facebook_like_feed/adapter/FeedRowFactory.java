@@ -0,0 +1,133 @@
+package com.desmond.facebook_like_feed.adapter;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.android.volley.toolbox.NetworkImageView;
+import com.desmond.facebook_like_feed.FeedImageView;
+import com.desmond.facebook_like_feed.R;
+
+import java.util.LinkedList;
+
+/**
+ * Hands out inflated feed_item rows, together with their {@link FeedListAdapter.ViewHolder},
+ * to {@link FeedListAdapter}.
+ *
+ * Rows requested through {@link #prefetch(int)} are inflated one at a time whenever the
+ * main thread goes idle (e.g. while the feed is still loading), so the first screenful
+ * doesn't pay for inflation and view lookups while scrolling.
+ */
+public class FeedRowFactory {
+
+    private final LayoutInflater mInflater;
+    private final ViewGroup mParent;
+    private final LinkedList<View> mPool = new LinkedList<View>();
+
+    private int mPendingRows;
+    private boolean mIdleHandlerAdded;
+
+    private int mPooledCount;
+    private int mInflatedCount;
+
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (mPendingRows > 0) {
+                mPool.add(inflateRow(mParent));
+                mPendingRows--;
+            }
+
+            // Keep the handler registered until all requested rows are inflated
+            mIdleHandlerAdded = mPendingRows > 0;
+            return mIdleHandlerAdded;
+        }
+    };
+
+    /**
+     * @param ctx Context used to inflate the rows
+     * @param parent The list the rows will be attached to, used to generate
+     *               their layout params. May be null.
+     */
+    public FeedRowFactory(Context ctx, ViewGroup parent) {
+        mInflater = LayoutInflater.from(ctx);
+        mParent = parent;
+    }
+
+    /**
+     * Schedules count rows to be inflated while the main thread is idle.
+     * Must be called from the main thread.
+     */
+    public void prefetch(int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        mPendingRows += count;
+        if (!mIdleHandlerAdded) {
+            Looper.myQueue().addIdleHandler(mIdleHandler);
+            mIdleHandlerAdded = true;
+        }
+    }
+
+    /**
+     * Drops any rows that haven't been inflated yet, along with any still unused in the pool.
+     * Call once the list has laid out its first screen, after which the pool won't be needed.
+     */
+    public void cancel() {
+        mPendingRows = 0;
+        mPool.clear();
+        if (mIdleHandlerAdded) {
+            Looper.myQueue().removeIdleHandler(mIdleHandler);
+            mIdleHandlerAdded = false;
+        }
+    }
+
+    /**
+     * Returns a row with a {@link FeedListAdapter.ViewHolder} set as its tag, taken
+     * from the pool if one is available, otherwise inflated on the spot.
+     */
+    public View obtainRow(ViewGroup parent) {
+        View row = mPool.poll();
+        if (row != null) {
+            mPooledCount++;
+            return row;
+        }
+
+        mInflatedCount++;
+        return inflateRow(parent);
+    }
+
+    /**
+     * Number of rows served from the pre-inflated pool
+     */
+    public int getPooledCount() {
+        return mPooledCount;
+    }
+
+    /**
+     * Number of rows that had to be inflated on the spot
+     */
+    public int getInflatedCount() {
+        return mInflatedCount;
+    }
+
+    private View inflateRow(ViewGroup parent) {
+        View row = mInflater.inflate(R.layout.feed_item, parent, false);
+
+        FeedListAdapter.ViewHolder holder = new FeedListAdapter.ViewHolder();
+        holder.name = (TextView) row.findViewById(R.id.name);
+        holder.timeStamp = (TextView) row.findViewById(R.id.timestamp);
+        holder.statusMsg = (TextView) row.findViewById(R.id.txtStatusMsg);
+        holder.url = (TextView) row.findViewById(R.id.txtUrl);
+        holder.profilePic = (NetworkImageView) row.findViewById(R.id.profilePic);
+        holder.feedImageView = (FeedImageView) row.findViewById(R.id.feedImage1);
+        row.setTag(holder);
+
+        return row;
+    }
+}
@@ -4,10 +4,11 @@ import android.app.Application;
 import android.text.TextUtils;
 
 import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.ImageLoader;
 import com.desmond.facebook_like_feed.volley.CustomVolley;
+import com.desmond.facebook_like_feed.volley.FeedImageLoader;
+import com.desmond.facebook_like_feed.volley.ImageClass;
 import com.desmond.facebook_like_feed.volley.LruBitmapCache;
+import com.desmond.facebook_like_feed.volley.TieredRequestQueue;
 
 /**
  * Created by desmond on 13/7/14.
@@ -15,8 +16,14 @@ import com.desmond.facebook_like_feed.volley.LruBitmapCache;
 public class AppController extends Application {
 
     public static final String TAG = AppController.class.getSimpleName();
-    private RequestQueue mRequestQueue;
-    private ImageLoader mImageLoader;
+
+    public static final String STAGE_REQUEST_QUEUE = "request-queue";
+    public static final String STAGE_IMAGE_LOADER = "image-loader";
+
+    private StartupTrace mStartupTrace;
+    private TieredRequestQueue mRequestQueue;
+    private FeedImageLoader mImageLoader;
+    private FeedImageLoader mAvatarImageLoader;
     private LruBitmapCache mLruBitmapCache;
 
     private static AppController mInstance;
@@ -25,13 +32,38 @@ public class AppController extends Application {
     public void onCreate() {
         super.onCreate();
         mInstance = this;
+        mStartupTrace = new StartupTrace();
+
+        // Create the request queue, scan its disk cache and set up the image loaders
+        // in the background so the first activity doesn't wait on them
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mStartupTrace.beginStage(STAGE_REQUEST_QUEUE);
+                getRequestQueue();
+                mStartupTrace.endStage(STAGE_REQUEST_QUEUE);
+
+                mStartupTrace.beginStage(STAGE_IMAGE_LOADER);
+                getImageLoader();
+                getAvatarImageLoader();
+                mStartupTrace.endStage(STAGE_IMAGE_LOADER);
+            }
+        }, TAG).start();
     }
 
     public static synchronized AppController getInstance() {
         return mInstance;
     }
 
-    public RequestQueue getRequestQueue() {
+    public StartupTrace getStartupTrace() {
+        return mStartupTrace;
+    }
+
+    /**
+     * Blocks until the request queue has been created and its disk cache scanned,
+     * if background initialization is still in progress
+     */
+    public synchronized TieredRequestQueue getRequestQueue() {
         if (mRequestQueue == null) {
             mRequestQueue = CustomVolley.newRequestQueue(getApplicationContext());
         }
@@ -39,17 +71,35 @@ public class AppController extends Application {
         return mRequestQueue;
     }
 
-    public ImageLoader getImageLoader() {
+    /**
+     * Image loader for feed photos
+     */
+    public synchronized FeedImageLoader getImageLoader() {
         getRequestQueue();
         if (mImageLoader == null) {
             getLruBitmapCache();
-            mImageLoader = new ImageLoader(this.mRequestQueue, mLruBitmapCache);
+            mImageLoader = new FeedImageLoader(this.mRequestQueue, mLruBitmapCache,
+                    ImageClass.FEED_PHOTO);
         }
 
         return mImageLoader;
     }
 
-    public LruBitmapCache getLruBitmapCache() {
+    /**
+     * Image loader for profile pictures, sharing the memory cache with {@link #getImageLoader()}
+     */
+    public synchronized FeedImageLoader getAvatarImageLoader() {
+        getRequestQueue();
+        if (mAvatarImageLoader == null) {
+            getLruBitmapCache();
+            mAvatarImageLoader = new FeedImageLoader(this.mRequestQueue, mLruBitmapCache,
+                    ImageClass.AVATAR);
+        }
+
+        return mAvatarImageLoader;
+    }
+
+    public synchronized LruBitmapCache getLruBitmapCache() {
         if (mLruBitmapCache == null) {
             mLruBitmapCache = new LruBitmapCache();
         }
@@ -66,7 +116,7 @@ public class AppController extends Application {
         getRequestQueue().add(req);
     }
 
-    public void cancelPendingRequests(Object tag) {
+    public synchronized void cancelPendingRequests(Object tag) {
         if (mRequestQueue != null) {
             mRequestQueue.cancelAll(tag);
         }
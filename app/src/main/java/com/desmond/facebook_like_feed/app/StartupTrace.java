@@ -0,0 +1,101 @@
+package com.desmond.facebook_like_feed.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the duration of each startup stage, and the time from application start
+ * to the first frame and to the first feed content, warning when either goes over budget.
+ *
+ * Stages can be recorded from any thread.
+ */
+public class StartupTrace {
+
+    private static final String TAG = StartupTrace.class.getSimpleName();
+
+    /** Budget from application start to the first frame being drawn */
+    public static final long FIRST_FRAME_BUDGET_MS = 400;
+
+    /** Budget from application start to the first feed items being displayed */
+    public static final long FIRST_CONTENT_BUDGET_MS = 1000;
+
+    private final long mStartTime;
+    private final Map<String, Long> mStageStarts = new HashMap<String, Long>();
+    private final Map<String, Long> mStageDurations = new LinkedHashMap<String, Long>();
+    private long mFirstFrameTime = -1;
+    private long mFirstContentTime = -1;
+
+    public StartupTrace() {
+        mStartTime = SystemClock.uptimeMillis();
+    }
+
+    public synchronized void beginStage(String stage) {
+        mStageStarts.put(stage, SystemClock.uptimeMillis());
+    }
+
+    public synchronized void endStage(String stage) {
+        Long start = mStageStarts.remove(stage);
+        if (start == null) {
+            return;
+        }
+
+        long duration = SystemClock.uptimeMillis() - start;
+        mStageDurations.put(stage, duration);
+        Log.d(TAG, stage + " took " + duration + "ms");
+    }
+
+    /**
+     * Records the first frame. Only the first call has any effect.
+     */
+    public synchronized void markFirstFrame() {
+        if (mFirstFrameTime < 0) {
+            mFirstFrameTime = SystemClock.uptimeMillis() - mStartTime;
+            report("first frame", mFirstFrameTime, FIRST_FRAME_BUDGET_MS);
+        }
+    }
+
+    /**
+     * Records the first feed content shown. Only the first call has any effect.
+     */
+    public synchronized void markFirstContent() {
+        if (mFirstContentTime < 0) {
+            mFirstContentTime = SystemClock.uptimeMillis() - mStartTime;
+            report("first content", mFirstContentTime, FIRST_CONTENT_BUDGET_MS);
+        }
+    }
+
+    /**
+     * @return Duration of a finished stage in ms, or -1 if it hasn't finished
+     */
+    public synchronized long getStageDuration(String stage) {
+        Long duration = mStageDurations.get(stage);
+        return duration != null ? duration : -1;
+    }
+
+    /**
+     * @return Time from application start to the first frame in ms, or -1 if not drawn yet
+     */
+    public synchronized long getTimeToFirstFrame() {
+        return mFirstFrameTime;
+    }
+
+    /**
+     * @return Time from application start to the first content in ms, or -1 if not shown yet
+     */
+    public synchronized long getTimeToFirstContent() {
+        return mFirstContentTime;
+    }
+
+    private void report(String milestone, long elapsed, long budget) {
+        if (elapsed > budget) {
+            Log.w(TAG, "Time to " + milestone + " " + elapsed + "ms is over the "
+                    + budget + "ms budget, stages: " + mStageDurations);
+        } else {
+            Log.d(TAG, "Time to " + milestone + " " + elapsed + "ms");
+        }
+    }
+}
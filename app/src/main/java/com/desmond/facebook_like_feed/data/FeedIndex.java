@@ -0,0 +1,330 @@
+package com.desmond.facebook_like_feed.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Search index over the feed, updated as batches of items arrive.
+ *
+ * Items are identified by their position, in the order they were added, which has to
+ * match their position in the feed list. Status text and author names are tokenized into
+ * a sorted inverted index for prefix queries, and timestamps are kept in a sorted primitive
+ * array for time range queries. Results are positions in ascending order, so the feed list
+ * can be shown filtered without copying any items.
+ *
+ * Not thread safe, meant to be used from the main thread alongside the feed list.
+ */
+public class FeedIndex {
+
+    /** Token to the positions of the items containing it, in ascending order */
+    private final TreeMap<String, IntList> mPostings = new TreeMap<String, IntList>();
+
+    /**
+     * First character to the items with a token starting with it. Single character
+     * queries are the broadest and would otherwise walk most of the postings.
+     */
+    private final Map<Character, long[]> mFirstCharMatches = new HashMap<Character, long[]>();
+
+    /** Timestamps in ascending order, and the position of the item each belongs to */
+    private long[] mTimestamps = new long[16];
+    private int[] mTimePositions = new int[16];
+    private int mTimeCount;
+
+    private int mSize;
+
+    /**
+     * Indexes items appended to the end of the feed list
+     */
+    public void addAll(List<FeedItem> items) {
+        long[] batchTimes = new long[items.size()];
+        int[] batchPositions = new int[items.size()];
+        int batchCount = 0;
+
+        for (FeedItem item : items) {
+            int position = mSize++;
+            addTokens(item.getName(), position);
+            addTokens(item.getStatus(), position);
+
+            try {
+                batchTimes[batchCount] = Long.parseLong(item.getTimeStamp());
+                batchPositions[batchCount] = position;
+                batchCount++;
+            } catch (NumberFormatException e) {
+                // Without a valid timestamp the item never matches a time range
+            }
+        }
+
+        sort(batchTimes, batchPositions, 0, batchCount,
+                new long[batchCount], new int[batchCount]);
+        mergeTimes(batchTimes, batchPositions, batchCount);
+    }
+
+    /**
+     * Number of items indexed
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Finds the items matching every word of the query, where a word matches any
+     * token in the item's name or status starting with it
+     *
+     * @return Positions of the matching items in ascending order
+     */
+    public int[] search(String query) {
+        return search(query, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the items matching every word of the query, with a timestamp between
+     * fromTime and toTime inclusive. An empty query matches on time alone.
+     *
+     * @return Positions of the matching items in ascending order
+     */
+    public int[] search(String query, long fromTime, long toTime) {
+        long[] matches = null;
+
+        for (String term : tokenize(query)) {
+            long[] termMatches = new long[bitSetLength()];
+            if (term.length() == 1) {
+                long[] firstCharMatches = mFirstCharMatches.get(term.charAt(0));
+                if (firstCharMatches != null) {
+                    System.arraycopy(firstCharMatches, 0, termMatches, 0,
+                            Math.min(firstCharMatches.length, termMatches.length));
+                }
+            } else {
+                for (IntList postings : mPostings.subMap(term, term + Character.MAX_VALUE).values()) {
+                    for (int i = 0; i < postings.size; i++) {
+                        int position = postings.values[i];
+                        termMatches[position >> 6] |= 1L << position;
+                    }
+                }
+            }
+            matches = intersect(matches, termMatches);
+        }
+
+        if (fromTime != Long.MIN_VALUE || toTime != Long.MAX_VALUE) {
+            long[] timeMatches = new long[bitSetLength()];
+            int end = upperBound(toTime);
+            for (int i = lowerBound(fromTime); i < end; i++) {
+                int position = mTimePositions[i];
+                timeMatches[position >> 6] |= 1L << position;
+            }
+            matches = intersect(matches, timeMatches);
+        }
+
+        if (matches == null) {
+            // Nothing to filter on, everything matches
+            int[] all = new int[mSize];
+            for (int i = 0; i < mSize; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        return toPositions(matches);
+    }
+
+    private void addTokens(String text, int position) {
+        for (String token : tokenize(text)) {
+            IntList postings = mPostings.get(token);
+            if (postings == null) {
+                postings = new IntList();
+                mPostings.put(token, postings);
+            }
+
+            // Tokens repeated within an item are only recorded once
+            if (postings.size == 0 || postings.values[postings.size - 1] != position) {
+                postings.add(position);
+            }
+
+            Character firstChar = token.charAt(0);
+            long[] firstCharMatches = mFirstCharMatches.get(firstChar);
+            if (firstCharMatches == null || firstCharMatches.length <= position >> 6) {
+                long[] grown = new long[Math.max(bitSetLength(),
+                        firstCharMatches != null ? firstCharMatches.length * 2 : 0)];
+                if (firstCharMatches != null) {
+                    System.arraycopy(firstCharMatches, 0, grown, 0, firstCharMatches.length);
+                }
+                firstCharMatches = grown;
+                mFirstCharMatches.put(firstChar, firstCharMatches);
+            }
+            firstCharMatches[position >> 6] |= 1L << position;
+        }
+    }
+
+    /**
+     * Splits text into lower case runs of letters and digits
+     */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<String>();
+        if (text == null) {
+            return tokens;
+        }
+
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Merges a sorted batch into the time index, working back from the end
+     */
+    private void mergeTimes(long[] batchTimes, int[] batchPositions, int batchCount) {
+        int total = mTimeCount + batchCount;
+        if (total > mTimestamps.length) {
+            int capacity = Math.max(total, mTimestamps.length * 2);
+            long[] timestamps = new long[capacity];
+            int[] positions = new int[capacity];
+            System.arraycopy(mTimestamps, 0, timestamps, 0, mTimeCount);
+            System.arraycopy(mTimePositions, 0, positions, 0, mTimeCount);
+            mTimestamps = timestamps;
+            mTimePositions = positions;
+        }
+
+        int i = mTimeCount - 1;
+        int j = batchCount - 1;
+        for (int k = total - 1; j >= 0; k--) {
+            if (i >= 0 && mTimestamps[i] > batchTimes[j]) {
+                mTimestamps[k] = mTimestamps[i];
+                mTimePositions[k] = mTimePositions[i];
+                i--;
+            } else {
+                mTimestamps[k] = batchTimes[j];
+                mTimePositions[k] = batchPositions[j];
+                j--;
+            }
+        }
+        mTimeCount = total;
+    }
+
+    /**
+     * Index of the first timestamp >= time
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = mTimeCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTimestamps[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first timestamp > time
+     */
+    private int upperBound(long time) {
+        int low = 0;
+        int high = mTimeCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTimestamps[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Stable merge sort of keys[from, to), moving values along with their keys
+     */
+    private static void sort(long[] keys, int[] values, int from, int to,
+                             long[] keyBuffer, int[] valueBuffer) {
+        if (to - from < 2) {
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        sort(keys, values, from, mid, keyBuffer, valueBuffer);
+        sort(keys, values, mid, to, keyBuffer, valueBuffer);
+        if (keys[mid - 1] <= keys[mid]) {
+            // Already in order
+            return;
+        }
+
+        System.arraycopy(keys, from, keyBuffer, from, to - from);
+        System.arraycopy(values, from, valueBuffer, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && keyBuffer[i] <= keyBuffer[j])) {
+                keys[k] = keyBuffer[i];
+                values[k] = valueBuffer[i++];
+            } else {
+                keys[k] = keyBuffer[j];
+                values[k] = valueBuffer[j++];
+            }
+        }
+    }
+
+    private int bitSetLength() {
+        return (mSize + 63) >> 6;
+    }
+
+    private static long[] intersect(long[] matches, long[] other) {
+        if (matches == null) {
+            return other;
+        }
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] &= other[i];
+        }
+        return matches;
+    }
+
+    private static int[] toPositions(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+
+        int[] positions = new int[count];
+        int next = 0;
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                positions[next++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Growable list of primitive ints
+     */
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = value;
+        }
+    }
+}
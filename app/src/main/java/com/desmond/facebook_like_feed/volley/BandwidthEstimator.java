@@ -0,0 +1,128 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.os.SystemClock;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Estimates download bandwidth from the body transfers of image downloads, and keeps their
+ * latencies separately for each {@link ImageClass}. Samples can be added from any thread.
+ *
+ * Transfers that overlap a hedge race aren't sampled, since racing requests share the link.
+ * The estimate goes stale when no samples come in, and while it's below the full quality
+ * tier, a fetch is let through at full quality now and then to probe for more bandwidth.
+ */
+public class BandwidthEstimator {
+
+    /** Smaller downloads are dominated by latency rather than bandwidth */
+    private static final int MIN_BANDWIDTH_SAMPLE_BYTES = 8 * 1024;
+
+    /** Weight given to each new bandwidth sample */
+    private static final double SMOOTHING_FACTOR = 0.25;
+
+    /** The estimate is dropped when there's been no sample for this long */
+    private static final long MAX_ESTIMATE_AGE_MS = 30 * 1000;
+
+    /** Minimum time between full quality probes while the estimate is below that tier */
+    private static final long PROBE_INTERVAL_MS = 15 * 1000;
+
+    private static final int LATENCY_WINDOW_SIZE = 100;
+
+    private final Map<ImageClass, LatencyWindow> mLatencies =
+            new EnumMap<ImageClass, LatencyWindow>(ImageClass.class);
+    private double mBandwidthKbps = -1;
+    private long mLastSampleTime;
+    private long mLastProbeTime;
+
+    private int mRacedTransfers;
+    private long mRaceEpoch;
+
+    public BandwidthEstimator() {
+        for (ImageClass imageClass : ImageClass.values()) {
+            mLatencies.put(imageClass, new LatencyWindow(LATENCY_WINDOW_SIZE));
+        }
+    }
+
+    /**
+     * @param imageClass Kind of image downloaded
+     * @param elapsedMs Time taken by the download, including connecting
+     */
+    public void addLatencySample(ImageClass imageClass, long elapsedMs) {
+        mLatencies.get(imageClass).add(elapsedMs);
+    }
+
+    /**
+     * Called when a body transfer starts
+     *
+     * @param raced Whether the request is racing a hedge or primary for the same image
+     * @return Token to pass to {@link #addBandwidthSample(long, int, long)}
+     */
+    public synchronized long beginTransfer(boolean raced) {
+        if (raced) {
+            mRacedTransfers++;
+            mRaceEpoch++;
+        }
+        return mRaceEpoch;
+    }
+
+    /**
+     * Called when a body transfer ends, whether or not it completed
+     */
+    public synchronized void endTransfer(boolean raced) {
+        if (raced) {
+            mRacedTransfers--;
+        }
+    }
+
+    /**
+     * @param raceEpoch Token returned when the transfer started
+     * @param bytes Size of the downloaded body
+     * @param elapsedMs Time taken by the body transfer alone
+     */
+    public synchronized void addBandwidthSample(long raceEpoch, int bytes, long elapsedMs) {
+        // A race started or was still going during the transfer, so it only got part of the link
+        if (bytes < MIN_BANDWIDTH_SAMPLE_BYTES
+                || raceEpoch != mRaceEpoch || mRacedTransfers > 0) {
+            return;
+        }
+
+        double kbps = bytes * 8.0 / Math.max(1, elapsedMs);
+        long now = SystemClock.elapsedRealtime();
+        mBandwidthKbps = isStale(now)
+                ? kbps : mBandwidthKbps + SMOOTHING_FACTOR * (kbps - mBandwidthKbps);
+        mLastSampleTime = now;
+    }
+
+    /**
+     * @return The estimated bandwidth in kilobits per second, or -1 if there's no
+     * recent estimate
+     */
+    public synchronized long getBandwidthKbps() {
+        return isStale(SystemClock.elapsedRealtime()) ? -1 : Math.round(mBandwidthKbps);
+    }
+
+    /**
+     * Picks the quality for the next fetch, occasionally probing a higher one
+     */
+    public synchronized ImageQuality getQuality() {
+        ImageQuality quality = ImageQuality.forBandwidth(getBandwidthKbps());
+        long now = SystemClock.elapsedRealtime();
+        if (quality != ImageQuality.HIGH && now - mLastProbeTime >= PROBE_INTERVAL_MS) {
+            mLastProbeTime = now;
+            return ImageQuality.HIGH;
+        }
+        return quality;
+    }
+
+    /**
+     * Latencies of recent downloads of the image class
+     */
+    public LatencyWindow getLatencies(ImageClass imageClass) {
+        return mLatencies.get(imageClass);
+    }
+
+    private boolean isStale(long now) {
+        return mBandwidthKbps < 0 || now - mLastSampleTime > MAX_ESTIMATE_AGE_MS;
+    }
+}
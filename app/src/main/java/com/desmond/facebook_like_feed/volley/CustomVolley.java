@@ -24,10 +24,19 @@ public class CustomVolley {
     /** Default maximum disk usage in byte */
     private static final int DEFAULT_DISK_USAGE_BYTES = 10 * 1024 * 1024;   //10MB
 
+    /**
+     * Default maximum disk usage in byte for decoded bitmaps. These are raw pixels: a screen
+     * wide RGB_565 feed photo takes 1-1.5MB, so this keeps the last 30-50 photos seen.
+     */
+    private static final int DEFAULT_DECODED_DISK_USAGE_BYTES = 50 * 1024 * 1024;   //50MB
+
     /** Default cache folder name */
     private static final String DEFAULT_CACHE_DIR = "photos";
 
-    public static RequestQueue newRequestQueue(Context context, HttpStack stack) {
+    /** Default cache folder name for decoded bitmaps */
+    private static final String DEFAULT_DECODED_CACHE_DIR = "decoded";
+
+    public static TieredRequestQueue newRequestQueue(Context context, HttpStack stack) {
         String userAgent = "photos/0";
         try {
             String packageName = context.getPackageName();
@@ -47,6 +56,9 @@ public class CustomVolley {
         File cacheDir = new File(rootCache, DEFAULT_CACHE_DIR);
         cacheDir.mkdirs();
 
+        File decodedCacheDir = new File(rootCache, DEFAULT_DECODED_CACHE_DIR);
+        decodedCacheDir.mkdirs();
+
         if (stack == null){
             if (Build.VERSION.SDK_INT >= 9) {
                 stack = new HurlStack();
@@ -57,10 +69,20 @@ public class CustomVolley {
             }
         }
 
-        Network network = new BasicNetwork(stack);
+        BandwidthEstimator bandwidthEstimator = new BandwidthEstimator();
+        Network network = new MeteredNetwork(
+                new BasicNetwork(new MeteredHttpStack(stack, bandwidthEstimator)),
+                bandwidthEstimator);
 
-        DiskBasedCache diskBasedCache = new DiskBasedCache(cacheDir, DEFAULT_DISK_USAGE_BYTES);
-        RequestQueue queue = new RequestQueue(diskBasedCache, network);
+        // Scan the cache before the queue is handed out, so lookups made right after
+        // startup can hit. The cache dispatcher's own scan then becomes a no-op.
+        DiskBasedCache diskBasedCache = new ScanOnceDiskBasedCache(cacheDir,
+                DEFAULT_DISK_USAGE_BYTES);
+        diskBasedCache.initialize();
+        DiskBitmapCache decodedCache = new DiskBitmapCache(decodedCacheDir,
+                DEFAULT_DECODED_DISK_USAGE_BYTES);
+        TieredRequestQueue queue = new TieredRequestQueue(diskBasedCache, network, decodedCache,
+                bandwidthEstimator);
         queue.start();
 
         return queue;
@@ -68,11 +90,31 @@ public class CustomVolley {
 
     /**
      * Creates a default instance of the worker pool and calls {@link RequestQueue#start()} on it.
+     * Scans the disk cache before returning, so should be called off the main thread.
      *
      * @param context A {@link Context} to use for creating the cache dir.
      * @return A started {@link RequestQueue} instance.
      */
-    public static RequestQueue newRequestQueue(Context context) {
+    public static TieredRequestQueue newRequestQueue(Context context) {
         return newRequestQueue(context, null);
     }
+
+    /**
+     * {@link DiskBasedCache} that only scans its directory on the first call to initialize
+     */
+    private static class ScanOnceDiskBasedCache extends DiskBasedCache {
+        private boolean mInitialized;
+
+        ScanOnceDiskBasedCache(File rootDirectory, int maxCacheSizeInBytes) {
+            super(rootDirectory, maxCacheSizeInBytes);
+        }
+
+        @Override
+        public synchronized void initialize() {
+            if (!mInitialized) {
+                super.initialize();
+                mInitialized = true;
+            }
+        }
+    }
 }
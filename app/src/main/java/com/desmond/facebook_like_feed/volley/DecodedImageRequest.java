@@ -0,0 +1,172 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.os.Debug;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Response;
+import com.android.volley.toolbox.ImageRequest;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * {@link ImageRequest} that decodes and processes the image according to its {@link ImageClass}.
+ * The result can then be written to a {@link DiskBitmapCache}, so a later request for the same
+ * image and size can skip the decode.
+ *
+ * {@link TieredRequestQueue} checks that cache before sending these requests on.
+ */
+public class DecodedImageRequest extends ImageRequest {
+
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final ImageClass mImageClass;
+    private final String mImageCacheKey;
+    private final ImageLoadStats mDecodeStats;
+
+    private volatile boolean mFromDecodedCache;
+    private volatile boolean mFetchedFromNetwork;
+    private volatile boolean mRaced;
+    private Runnable mNetworkStartListener;
+
+    /**
+     * @param imageClass Decides the decode config and any processing of the bitmap
+     * @param imageCacheKey The ImageLoader cache key, identifying both the image and its size
+     * @param decodeStats Records the time taken to decode and process the original
+     */
+    public DecodedImageRequest(String url, Response.Listener<Bitmap> listener,
+                               int maxWidth, int maxHeight, ScaleType scaleType,
+                               ImageClass imageClass, Response.ErrorListener errorListener,
+                               String imageCacheKey, ImageLoadStats decodeStats) {
+        super(url, listener, maxWidth, maxHeight,
+                cropsToSize(imageClass, maxWidth, maxHeight) ? ScaleType.CENTER_CROP : scaleType,
+                imageClass.getDecodeConfig(), errorListener);
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mImageClass = imageClass;
+        mImageCacheKey = imageCacheKey;
+        mDecodeStats = decodeStats;
+    }
+
+    public String getImageCacheKey() {
+        return mImageCacheKey;
+    }
+
+    public ImageClass getImageClass() {
+        return mImageClass;
+    }
+
+    /**
+     * Sets a listener run, on a network thread, when the request misses the caches and
+     * goes to the network. Must be set before the request is added to the queue.
+     */
+    public void setNetworkStartListener(Runnable listener) {
+        mNetworkStartListener = listener;
+    }
+
+    void markNetworkStart() {
+        mFetchedFromNetwork = true;
+        if (mNetworkStartListener != null) {
+            mNetworkStartListener.run();
+        }
+    }
+
+    /**
+     * Whether another request for the same image is racing this one, so they share the link
+     */
+    public boolean isRaced() {
+        return mRaced;
+    }
+
+    public void markRaced() {
+        mRaced = true;
+    }
+
+    /**
+     * Whether the response was read from the decoded cache, rather than decoded from an original
+     */
+    public boolean isFromDecodedCache() {
+        return mFromDecodedCache;
+    }
+
+    void markFromDecodedCache() {
+        mFromDecodedCache = true;
+    }
+
+    /**
+     * Transcoded originals only suit the size they were processed for, so they're
+     * cached under the image cache key, which includes that size, instead of the URL
+     */
+    @Override
+    public String getCacheKey() {
+        return mImageClass.transcodesOriginal() ? mImageCacheKey : super.getCacheKey();
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        long startWall = System.nanoTime();
+        long startCpu = Debug.threadCpuTimeNanos();
+        Response<Bitmap> parsed = super.parseNetworkResponse(response);
+        if (!parsed.isSuccess()) {
+            return parsed;
+        }
+
+        Bitmap bitmap = parsed.result;
+        if (cropsToSize(mImageClass, mMaxWidth, mMaxHeight)) {
+            bitmap = cropToSize(bitmap, mMaxWidth, mMaxHeight);
+        }
+        mDecodeStats.record(System.nanoTime() - startWall,
+                Debug.threadCpuTimeNanos() - startCpu);
+
+        // Cache hits and 304s parse an entry that was already transcoded
+        if (mImageClass.transcodesOriginal() && mFetchedFromNetwork && !response.notModified
+                && parsed.cacheEntry != null) {
+            transcodeOriginal(bitmap, parsed.cacheEntry);
+        }
+        return Response.success(bitmap, parsed.cacheEntry);
+    }
+
+    private static boolean cropsToSize(ImageClass imageClass, int width, int height) {
+        return imageClass.cropsToSize() && width > 0 && height > 0;
+    }
+
+    /**
+     * Center crops and scales the bitmap to exactly width x height
+     */
+    private static Bitmap cropToSize(Bitmap bitmap, int width, int height) {
+        int bWidth = bitmap.getWidth();
+        int bHeight = bitmap.getHeight();
+        if (bWidth == width && bHeight == height) {
+            return bitmap;
+        }
+
+        float scale = Math.max((float) width / bWidth, (float) height / bHeight);
+        int srcWidth = Math.min(bWidth, Math.round(width / scale));
+        int srcHeight = Math.min(bHeight, Math.round(height / scale));
+
+        Matrix matrix = new Matrix();
+        matrix.setScale((float) width / srcWidth, (float) height / srcHeight);
+        Bitmap cropped = Bitmap.createBitmap(bitmap, (bWidth - srcWidth) / 2,
+                (bHeight - srcHeight) / 2, srcWidth, srcHeight, matrix, true);
+        if (cropped != bitmap) {
+            bitmap.recycle();
+        }
+        return cropped;
+    }
+
+    /**
+     * Replaces the original in the cache entry with the re-encoded bitmap, if that's smaller
+     */
+    private void transcodeOriginal(Bitmap bitmap, Cache.Entry entry) {
+        Bitmap.CompressFormat format = bitmap.hasAlpha()
+                ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (bitmap.compress(format, mImageClass.getTranscodeQuality(), out)
+                && out.size() < entry.data.length) {
+            entry.data = out.toByteArray();
+        }
+    }
+}
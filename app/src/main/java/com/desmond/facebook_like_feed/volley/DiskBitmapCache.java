@@ -0,0 +1,294 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.graphics.Bitmap;
+
+import com.android.volley.VolleyLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk cache of decoded, display-ready bitmaps, keyed by the {@link com.android.volley.toolbox.ImageLoader}
+ * cache key (URL plus target size).
+ *
+ * Each file holds a small header followed by the raw pixels, which are memory-mapped
+ * straight into a new bitmap on read, so a hit skips decoding and downscaling the original.
+ * Least recently used files are evicted once the cache goes over its size budget.
+ *
+ * The index is guarded by this object's lock, which is never held while touching the disk,
+ * so {@link #contains(String)} stays cheap enough for the main thread.
+ */
+public class DiskBitmapCache {
+
+    /** Magic number identifying the current file format */
+    private static final int CACHE_MAGIC = 0x20150103;
+
+    /** Prune down to this fraction of the budget when evicting */
+    private static final float HYSTERESIS_FACTOR = 0.9f;
+
+    /** File name suffix for files still being written */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /** File name to size in bytes, in access order */
+    private final Map<String, Long> mEntries = new LinkedHashMap<String, Long>(16, .75f, true);
+
+    private long mTotalSize = 0;
+
+    private final File mRootDirectory;
+
+    private final int mMaxCacheSizeInBytes;
+
+    /**
+     * @param rootDirectory The root directory of the cache
+     * @param maxCacheSizeInBytes The maximum size of the cache in bytes
+     */
+    public DiskBitmapCache(File rootDirectory, int maxCacheSizeInBytes) {
+        mRootDirectory = rootDirectory;
+        mMaxCacheSizeInBytes = maxCacheSizeInBytes;
+    }
+
+    /**
+     * Builds the index from the files on disk. Should be called off the main thread.
+     */
+    public void initialize() {
+        if (!mRootDirectory.exists()) {
+            if (!mRootDirectory.mkdirs()) {
+                VolleyLog.e("Unable to create cache dir %s", mRootDirectory.getAbsolutePath());
+            }
+            return;
+        }
+
+        File[] files = mRootDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Oldest first, so the access order matches the order files were written in
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long diff = lhs.lastModified() - rhs.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        List<File> cacheFiles = new ArrayList<File>(files.length);
+        List<Long> sizes = new ArrayList<Long>(files.length);
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_SUFFIX)) {
+                // Left over from an interrupted write
+                file.delete();
+            } else {
+                cacheFiles.add(file);
+                sizes.add(file.length());
+            }
+        }
+
+        List<String> evicted;
+        synchronized (this) {
+            for (int i = 0; i < cacheFiles.size(); i++) {
+                putEntry(cacheFiles.get(i).getName(), sizes.get(i));
+            }
+            evicted = pruneIfNeeded(0);
+        }
+        deleteFiles(evicted);
+    }
+
+    /**
+     * Returns true if there's an entry for the key. Doesn't touch the disk.
+     */
+    public synchronized boolean contains(String key) {
+        return mEntries.containsKey(getFilenameForKey(key));
+    }
+
+    /**
+     * Returns the bitmap for the key, or null if there isn't one
+     */
+    public Bitmap get(String key) {
+        String filename = getFilenameForKey(key);
+        synchronized (this) {
+            // Also marks the entry as recently used
+            if (mEntries.get(filename) == null) {
+                return null;
+            }
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(new File(mRootDirectory, filename), "r");
+            if (file.readInt() != CACHE_MAGIC || !key.equals(file.readUTF())) {
+                // Different format or a key with the same file name, which shouldn't
+                // keep taking up the budget or passing contains()
+                remove(key);
+                return null;
+            }
+
+            int width = file.readInt();
+            int height = file.readInt();
+            Bitmap.Config config = Bitmap.Config.valueOf(file.readUTF());
+
+            long offset = file.getFilePointer();
+            ByteBuffer pixels = file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    offset, file.length() - offset);
+            Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+            bitmap.copyPixelsFromBuffer(pixels);
+            return bitmap;
+        } catch (IOException e) {
+            VolleyLog.d("%s: %s", filename, e.toString());
+            remove(key);
+            return null;
+        } catch (RuntimeException e) {
+            // Unknown config or truncated pixel data
+            VolleyLog.d("%s: %s", filename, e.toString());
+            remove(key);
+            return null;
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the bitmap's pixels to the cache. Should be called off the main thread.
+     */
+    public void put(String key, Bitmap bitmap) {
+        Bitmap.Config config = bitmap.getConfig();
+        if (config == null) {
+            return;
+        }
+
+        int pixelBytes = bitmap.getRowBytes() * bitmap.getHeight();
+        if (pixelBytes > mMaxCacheSizeInBytes) {
+            return;
+        }
+
+        String filename = getFilenameForKey(key);
+        File tmpFile = null;
+        RandomAccessFile file = null;
+        try {
+            // Written under a temporary name then renamed, so readers never see a partial file
+            tmpFile = File.createTempFile(filename + "-", TMP_SUFFIX, mRootDirectory);
+            file = new RandomAccessFile(tmpFile, "rw");
+            file.writeInt(CACHE_MAGIC);
+            file.writeUTF(key);
+            file.writeInt(bitmap.getWidth());
+            file.writeInt(bitmap.getHeight());
+            file.writeUTF(config.name());
+
+            long offset = file.getFilePointer();
+            file.setLength(offset + pixelBytes);
+            ByteBuffer pixels = file.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                    offset, pixelBytes);
+            bitmap.copyPixelsToBuffer(pixels);
+            file.close();
+            file = null;
+
+            File cacheFile = new File(mRootDirectory, filename);
+            if (!tmpFile.renameTo(cacheFile)) {
+                tmpFile.delete();
+                return;
+            }
+
+            long size = cacheFile.length();
+            List<String> evicted;
+            synchronized (this) {
+                // Drop any previous entry first, so pruning can't evict the file just written
+                removeEntry(filename);
+                evicted = pruneIfNeeded(size);
+                putEntry(filename, size);
+            }
+            deleteFiles(evicted);
+        } catch (IOException e) {
+            VolleyLog.d("Could not write %s: %s", filename, e.toString());
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the entry for the key, if any
+     */
+    public void remove(String key) {
+        String filename = getFilenameForKey(key);
+        synchronized (this) {
+            removeEntry(filename);
+        }
+        new File(mRootDirectory, filename).delete();
+    }
+
+    private void putEntry(String filename, long size) {
+        Long oldSize = mEntries.put(filename, size);
+        mTotalSize += size - (oldSize != null ? oldSize : 0);
+    }
+
+    private void removeEntry(String filename) {
+        Long size = mEntries.remove(filename);
+        if (size != null) {
+            mTotalSize -= size;
+        }
+    }
+
+    /**
+     * Removes least recently used entries from the index until the needed space fits
+     * under the budget. Must be called with the lock held.
+     *
+     * @return The names of the evicted files, to be deleted once the lock is released
+     */
+    private List<String> pruneIfNeeded(long neededSpace) {
+        List<String> evicted = new ArrayList<String>();
+        if (mTotalSize + neededSpace < mMaxCacheSizeInBytes) {
+            return evicted;
+        }
+
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            evicted.add(entry.getKey());
+            mTotalSize -= entry.getValue();
+            iterator.remove();
+
+            if (mTotalSize + neededSpace < mMaxCacheSizeInBytes * HYSTERESIS_FACTOR) {
+                break;
+            }
+        }
+        return evicted;
+    }
+
+    private void deleteFiles(List<String> filenames) {
+        for (String filename : filenames) {
+            new File(mRootDirectory, filename).delete();
+        }
+    }
+
+    /**
+     * Creates a pseudo-unique filename for the specified cache key
+     */
+    private static String getFilenameForKey(String key) {
+        int firstHalfLength = key.length() / 2;
+        String localFilename = String.valueOf(key.substring(0, firstHalfLength).hashCode());
+        localFilename += String.valueOf(key.substring(firstHalfLength).hashCode());
+        return localFilename;
+    }
+}
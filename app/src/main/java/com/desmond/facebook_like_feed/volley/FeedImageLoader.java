@@ -0,0 +1,357 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.ImageLoader;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link ImageLoader} for one {@link ImageClass} of images, whose requests go through
+ * the decoded bitmap tier of a {@link TieredRequestQueue}.
+ *
+ * The image quality requested follows the estimated bandwidth. Images loaded below
+ * {@link ImageQuality#HIGH} stay out of the decoded disk cache, and are loaded again once the
+ * bandwidth allows a better quality.
+ *
+ * Once a fetch has missed the caches and gone to the network, it's hedged with a duplicate
+ * request if it takes longer than most recent downloads of the same image class. Whichever
+ * responds first is used and the other one is canceled.
+ */
+public class FeedImageLoader extends ImageLoader {
+
+    /** Fetches slower than this percentile of recent downloads get hedged */
+    private static final int HEDGE_PERCENTILE = 95;
+
+    /** Hedge delay used until there are enough download samples */
+    private static final long DEFAULT_HEDGE_DELAY_MS = 1000;
+
+    private static final long MIN_HEDGE_DELAY_MS = 300;
+
+    private static final int MIN_LATENCY_SAMPLES = 10;
+
+    /** Limits the extra load hedging puts on an already slow link */
+    private static final int MAX_HEDGES_IN_FLIGHT = 2;
+
+    private static final int FETCH_LATENCY_WINDOW_SIZE = 100;
+
+    private final TieredRequestQueue mRequestQueue;
+    private final QualityAwareImageCache mImageCache;
+    private final ImageClass mImageClass;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private int mCachedCount;
+    private long mCachedBytes;
+
+    private final LatencyWindow mFetchLatencies = new LatencyWindow(FETCH_LATENCY_WINDOW_SIZE);
+    private int mHedgesInFlight;
+    private int mHedgesIssued;
+    private int mHedgesWon;
+
+    public FeedImageLoader(TieredRequestQueue queue, ImageCache imageCache, ImageClass imageClass) {
+        this(queue, new QualityAwareImageCache(imageCache, queue.getBandwidthEstimator()),
+                imageClass);
+    }
+
+    private FeedImageLoader(TieredRequestQueue queue, QualityAwareImageCache imageCache,
+                            ImageClass imageClass) {
+        super(queue, imageCache);
+        mRequestQueue = queue;
+        mImageCache = imageCache;
+        mImageClass = imageClass;
+    }
+
+    @Override
+    protected Request<Bitmap> makeImageRequest(String requestUrl, int maxWidth, int maxHeight,
+                                               ScaleType scaleType, String cacheKey) {
+        // Only the request URL changes, the image is still cached under the original one
+        ImageQuality quality = ImageQuality.HIGH;
+        if (mImageClass.adaptsQuality()) {
+            quality = mRequestQueue.getBandwidthEstimator().getQuality();
+            requestUrl = quality.applyTo(requestUrl);
+        }
+
+        return new HedgedFetch(requestUrl, quality, maxWidth, maxHeight, scaleType, cacheKey)
+                .start();
+    }
+
+    @Override
+    protected void onGetImageSuccess(String cacheKey, Bitmap response) {
+        // Every successful load gets added to the memory cache
+        mCachedCount++;
+        mCachedBytes += response.getRowBytes() * response.getHeight();
+        super.onGetImageSuccess(cacheKey, response);
+    }
+
+    /**
+     * Describes the memory taken by the bitmaps this loader has added to the memory cache
+     */
+    public String getMemoryReport() {
+        long average = mCachedCount == 0 ? 0 : mCachedBytes / mCachedCount;
+        return String.format(Locale.US, "%s: %d bitmaps cached, avg %dKB (%s)",
+                mImageClass, mCachedCount, average / 1024, mImageClass.getDecodeConfig());
+    }
+
+    /**
+     * Describes recent fetch latencies, from reaching the network to the response,
+     * and how hedging went
+     */
+    public String getFetchReport() {
+        return String.format(Locale.US,
+                "%s: fetch p50 %dms, p95 %dms, p99 %dms; %d hedged, %d won by the hedge; %dkbps",
+                mImageClass, mFetchLatencies.getPercentile(50), mFetchLatencies.getPercentile(95),
+                mFetchLatencies.getPercentile(99), mHedgesIssued, mHedgesWon,
+                mRequestQueue.getBandwidthEstimator().getBandwidthKbps());
+    }
+
+    private long getHedgeDelay() {
+        LatencyWindow latencies = mRequestQueue.getBandwidthEstimator().getLatencies(mImageClass);
+        if (latencies.getCount() < MIN_LATENCY_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY_MS;
+        }
+        return Math.max(MIN_HEDGE_DELAY_MS, latencies.getPercentile(HEDGE_PERCENTILE));
+    }
+
+    /**
+     * Fetches one image with a primary request, adding a hedge request if the primary is
+     * still outstanding the hedge delay after it went to the network. Only used from the
+     * main thread.
+     */
+    private class HedgedFetch implements Runnable {
+        private final String mUrl;
+        private final ImageQuality mQuality;
+        private final int mMaxWidth;
+        private final int mMaxHeight;
+        private final ScaleType mScaleType;
+        private final String mCacheKey;
+
+        /** When the primary went to the network, or 0 if it hasn't */
+        private long mNetworkStartTime;
+
+        private DecodedImageRequest mPrimary;
+        private DecodedImageRequest mHedge;
+        private boolean mPrimaryFailed;
+        private boolean mHedgeFailed;
+        private boolean mDone;
+
+        HedgedFetch(String url, ImageQuality quality, int maxWidth, int maxHeight,
+                    ScaleType scaleType, String cacheKey) {
+            mUrl = url;
+            mQuality = quality;
+            mMaxWidth = maxWidth;
+            mMaxHeight = maxHeight;
+            mScaleType = scaleType;
+            mCacheKey = cacheKey;
+        }
+
+        /**
+         * @return The primary request, to be added to the queue by the caller
+         */
+        Request<Bitmap> start() {
+            mPrimary = newRequest(false);
+            // Cache hits never reach the network, so they're neither hedged nor timed
+            mPrimary.setNetworkStartListener(new Runnable() {
+                @Override
+                public void run() {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onNetworkStart();
+                        }
+                    });
+                }
+            });
+            return mPrimary;
+        }
+
+        private void onNetworkStart() {
+            if (mDone || mNetworkStartTime != 0) {
+                return;
+            }
+
+            mNetworkStartTime = SystemClock.elapsedRealtime();
+            if (mImageClass.hedgesFetches()) {
+                mHandler.postDelayed(this, getHedgeDelay());
+            }
+        }
+
+        /**
+         * Issues the hedge request
+         */
+        @Override
+        public void run() {
+            if (mDone || mHedgesInFlight >= MAX_HEDGES_IN_FLIGHT) {
+                return;
+            }
+
+            mHedge = newRequest(true);
+            // Otherwise the queue would hold it back until the primary with the same URL finishes
+            mHedge.setShouldCache(false);
+            // Neither download says much about bandwidth while they share the link
+            mHedge.markRaced();
+            mPrimary.markRaced();
+            mHedgesInFlight++;
+            mHedgesIssued++;
+            mRequestQueue.add(mHedge);
+        }
+
+        private DecodedImageRequest newRequest(final boolean isHedge) {
+            return new DecodedImageRequest(mUrl, new Response.Listener<Bitmap>() {
+                @Override
+                public void onResponse(Bitmap response) {
+                    onSuccess(isHedge, response);
+                }
+            }, mMaxWidth, mMaxHeight, mScaleType, mImageClass, new Response.ErrorListener() {
+                @Override
+                public void onErrorResponse(VolleyError error) {
+                    onError(isHedge, error);
+                }
+            }, mCacheKey, mRequestQueue.getDecodeStats()) {
+                @Override
+                public void cancel() {
+                    super.cancel();
+                    // The ImageLoader only knows about the primary
+                    if (!isHedge) {
+                        finish();
+                    }
+                }
+            };
+        }
+
+        private void onSuccess(boolean isHedge, Bitmap bitmap) {
+            if (mDone) {
+                return;
+            }
+
+            finish();
+            if (isHedge) {
+                mHedgesWon++;
+                mPrimary.cancel();
+            }
+            if (mNetworkStartTime != 0) {
+                mFetchLatencies.add(SystemClock.elapsedRealtime() - mNetworkStartTime);
+            }
+
+            // Only the winning request's bitmap gets written to the decoded cache, and only at
+            // full quality. A lower quality would otherwise outlive the slow link it was made for.
+            // Transcoded originals are already at display size, so they'd only be duplicated.
+            DecodedImageRequest winner = isHedge ? mHedge : mPrimary;
+            if (winner.isFromDecodedCache()) {
+                mImageCache.setQuality(mCacheKey, ImageQuality.HIGH);
+            } else {
+                mImageCache.setQuality(mCacheKey, mQuality);
+                if (mQuality == ImageQuality.HIGH && !mImageClass.transcodesOriginal()) {
+                    mRequestQueue.putDecoded(mCacheKey, bitmap);
+                }
+            }
+            onGetImageSuccess(mCacheKey, bitmap);
+        }
+
+        private void onError(boolean isHedge, VolleyError error) {
+            if (mDone) {
+                return;
+            }
+
+            // Wait for the other request if it can still succeed
+            if (isHedge) {
+                mHedgeFailed = true;
+                if (!mPrimaryFailed) {
+                    return;
+                }
+            } else {
+                mPrimaryFailed = true;
+                if (mHedge != null && !mHedgeFailed) {
+                    return;
+                }
+            }
+
+            finish();
+            onGetImageError(mCacheKey, error);
+        }
+
+        /**
+         * Stops the hedge from being issued, or cancels it if it's still outstanding
+         */
+        private void finish() {
+            if (mDone) {
+                return;
+            }
+
+            mDone = true;
+            mHandler.removeCallbacks(this);
+            if (mHedge != null) {
+                mHedge.cancel();
+                mHedgesInFlight--;
+            }
+        }
+    }
+
+    /**
+     * Remembers which memory cached bitmaps were loaded below full quality, and reports them as
+     * missing once the estimated bandwidth allows a better quality, so they get loaded again.
+     * Only used from the main thread.
+     */
+    private static class QualityAwareImageCache implements ImageCache {
+
+        /** More than the memory cache holds, older entries are most likely evicted already */
+        private static final int MAX_REDUCED_QUALITY_ENTRIES = 256;
+
+        private final ImageCache mImageCache;
+        private final BandwidthEstimator mBandwidthEstimator;
+        private final Map<String, ImageQuality> mReducedQualities =
+                new LinkedHashMap<String, ImageQuality>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImageQuality> eldest) {
+                return size() > MAX_REDUCED_QUALITY_ENTRIES;
+            }
+        };
+
+        QualityAwareImageCache(ImageCache imageCache, BandwidthEstimator bandwidthEstimator) {
+            mImageCache = imageCache;
+            mBandwidthEstimator = bandwidthEstimator;
+        }
+
+        @Override
+        public Bitmap getBitmap(String url) {
+            ImageQuality quality = mReducedQualities.get(url);
+            if (quality == null) {
+                return mImageCache.getBitmap(url);
+            }
+
+            Bitmap bitmap = mImageCache.getBitmap(url);
+            if (bitmap == null) {
+                // Evicted from the memory cache, so there's nothing left to upgrade
+                mReducedQualities.remove(url);
+            } else if (quality.compareTo(
+                    ImageQuality.forBandwidth(mBandwidthEstimator.getBandwidthKbps())) < 0) {
+                return null;
+            }
+            return bitmap;
+        }
+
+        @Override
+        public void putBitmap(String url, Bitmap bitmap) {
+            mImageCache.putBitmap(url, bitmap);
+        }
+
+        /**
+         * Records the quality of the bitmap about to be put for the key
+         */
+        void setQuality(String url, ImageQuality quality) {
+            if (quality == ImageQuality.HIGH) {
+                mReducedQualities.remove(url);
+            } else {
+                mReducedQualities.put(url, quality);
+            }
+        }
+    }
+}
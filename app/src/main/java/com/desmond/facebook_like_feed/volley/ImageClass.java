@@ -0,0 +1,78 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.graphics.Bitmap;
+
+/**
+ * Kinds of images the feed loads, each with its own decode config and processing.
+ * Processing happens once on a worker thread, before the bitmap is cached.
+ */
+public enum ImageClass {
+
+    /**
+     * Feed photos are opaque, so they don't need an alpha channel.
+     * Their quality adapts to the available bandwidth, and slow fetches get hedged.
+     */
+    FEED_PHOTO(Bitmap.Config.RGB_565, false, 0, true, true),
+
+    /**
+     * Profile pictures may be transparent. They're cropped and scaled to exactly
+     * the view size, and the cached original is replaced with that smaller version,
+     * cached separately for each size.
+     */
+    AVATAR(Bitmap.Config.ARGB_8888, true, 90, false, false);
+
+    private final Bitmap.Config mDecodeConfig;
+    private final boolean mCropToSize;
+    private final int mTranscodeQuality;
+    private final boolean mAdaptsQuality;
+    private final boolean mHedgesFetches;
+
+    ImageClass(Bitmap.Config decodeConfig, boolean cropToSize, int transcodeQuality,
+               boolean adaptsQuality, boolean hedgesFetches) {
+        mDecodeConfig = decodeConfig;
+        mCropToSize = cropToSize;
+        mTranscodeQuality = transcodeQuality;
+        mAdaptsQuality = adaptsQuality;
+        mHedgesFetches = hedgesFetches;
+    }
+
+    public Bitmap.Config getDecodeConfig() {
+        return mDecodeConfig;
+    }
+
+    /**
+     * Whether bitmaps get center cropped and scaled to the requested size
+     */
+    public boolean cropsToSize() {
+        return mCropToSize;
+    }
+
+    /**
+     * Whether the original stored in the HTTP cache gets replaced
+     * with a re-encoded copy of the processed bitmap
+     */
+    public boolean transcodesOriginal() {
+        return mTranscodeQuality > 0;
+    }
+
+    /**
+     * JPEG quality used when transcoding the original
+     */
+    public int getTranscodeQuality() {
+        return mTranscodeQuality;
+    }
+
+    /**
+     * Whether the {@link ImageQuality} requested depends on the estimated bandwidth
+     */
+    public boolean adaptsQuality() {
+        return mAdaptsQuality;
+    }
+
+    /**
+     * Whether network fetches slower than most recent ones get a duplicate hedge request
+     */
+    public boolean hedgesFetches() {
+        return mHedgesFetches;
+    }
+}
@@ -0,0 +1,49 @@
+package com.desmond.facebook_like_feed.volley;
+
+import java.util.Locale;
+
+/**
+ * Accumulates wall clock and CPU time spent producing bitmaps one way,
+ * e.g. decoding originals or reading decoded pixels back from disk.
+ */
+public class ImageLoadStats {
+
+    private final String mName;
+    private int mCount;
+    private long mTotalWallNanos;
+    private long mTotalCpuNanos;
+
+    public ImageLoadStats(String name) {
+        mName = name;
+    }
+
+    public synchronized void record(long wallNanos, long cpuNanos) {
+        mCount++;
+        mTotalWallNanos += wallNanos;
+        mTotalCpuNanos += cpuNanos;
+    }
+
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return Average wall clock time per bitmap in ms
+     */
+    public synchronized double getAverageWallMillis() {
+        return mCount == 0 ? 0 : mTotalWallNanos / 1e6 / mCount;
+    }
+
+    /**
+     * @return Average CPU time per bitmap in ms
+     */
+    public synchronized double getAverageCpuMillis() {
+        return mCount == 0 ? 0 : mTotalCpuNanos / 1e6 / mCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s: %d bitmaps, avg %.2fms wall, %.2fms cpu",
+                mName, mCount, getAverageWallMillis(), getAverageCpuMillis());
+    }
+}
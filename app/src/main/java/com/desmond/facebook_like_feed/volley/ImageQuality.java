@@ -0,0 +1,44 @@
+package com.desmond.facebook_like_feed.volley;
+
+/**
+ * Image quality tiers, picked from the estimated bandwidth and requested
+ * through a query parameter on the image URL
+ */
+public enum ImageQuality {
+
+    LOW("low", 0),
+    MEDIUM("medium", 500),
+
+    /** The original URL, used while there's no recent bandwidth estimate */
+    HIGH(null, 2000);
+
+    private static final String QUERY_PARAM = "quality";
+
+    private final String mParamValue;
+    private final long mMinBandwidthKbps;
+
+    ImageQuality(String paramValue, long minBandwidthKbps) {
+        mParamValue = paramValue;
+        mMinBandwidthKbps = minBandwidthKbps;
+    }
+
+    /**
+     * @param bandwidthKbps Estimated bandwidth, or a negative value if unknown
+     */
+    public static ImageQuality forBandwidth(long bandwidthKbps) {
+        if (bandwidthKbps < 0 || bandwidthKbps >= HIGH.mMinBandwidthKbps) {
+            return HIGH;
+        }
+        return bandwidthKbps >= MEDIUM.mMinBandwidthKbps ? MEDIUM : LOW;
+    }
+
+    /**
+     * Returns the URL to request the image at this quality
+     */
+    public String applyTo(String url) {
+        if (mParamValue == null) {
+            return url;
+        }
+        return url + (url.indexOf('?') < 0 ? '?' : '&') + QUERY_PARAM + "=" + mParamValue;
+    }
+}
@@ -0,0 +1,42 @@
+package com.desmond.facebook_like_feed.volley;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples and reports percentiles over them
+ */
+public class LatencyWindow {
+
+    private final long[] mSamples;
+    private int mNext;
+    private int mCount;
+
+    public LatencyWindow(int capacity) {
+        mSamples = new long[capacity];
+    }
+
+    public synchronized void add(long latencyMs) {
+        mSamples[mNext] = latencyMs;
+        mNext = (mNext + 1) % mSamples.length;
+        mCount = Math.min(mCount + 1, mSamples.length);
+    }
+
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The latency in ms at the percentile, or -1 if there are no samples
+     */
+    public synchronized long getPercentile(int percentile) {
+        if (mCount == 0) {
+            return -1;
+        }
+
+        long[] sorted = Arrays.copyOf(mSamples, mCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * mCount) - 1;
+        return sorted[Math.max(0, Math.min(index, mCount - 1))];
+    }
+}
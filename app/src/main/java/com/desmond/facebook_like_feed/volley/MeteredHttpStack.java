@@ -0,0 +1,135 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.os.SystemClock;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HttpStack;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * {@link HttpStack} that times the body transfer of image downloads, from the response
+ * headers arriving to the last byte, and feeds it to a {@link BandwidthEstimator}.
+ *
+ * Connecting and waiting for the first byte are left out, so small bodies don't make
+ * the link look slower than it is.
+ */
+public class MeteredHttpStack implements HttpStack {
+
+    private final HttpStack mStack;
+    private final BandwidthEstimator mEstimator;
+
+    public MeteredHttpStack(HttpStack stack, BandwidthEstimator estimator) {
+        mStack = stack;
+        mEstimator = estimator;
+    }
+
+    @Override
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        HttpResponse response = mStack.performRequest(request, additionalHeaders);
+
+        HttpEntity entity = response.getEntity();
+        if (request instanceof DecodedImageRequest && entity != null
+                && response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+            response.setEntity(new MeteredEntity(entity, (DecodedImageRequest) request));
+        }
+        return response;
+    }
+
+    private class MeteredEntity extends HttpEntityWrapper {
+        private final DecodedImageRequest mRequest;
+        private MeteredInputStream mContent;
+
+        MeteredEntity(HttpEntity entity, DecodedImageRequest request) {
+            super(entity);
+            mRequest = request;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            if (mContent == null) {
+                mContent = new MeteredInputStream(super.getContent(), mRequest);
+            }
+            return mContent;
+        }
+
+        @Override
+        public void consumeContent() throws IOException {
+            if (mContent != null) {
+                mContent.finish(false);
+            }
+            super.consumeContent();
+        }
+    }
+
+    private class MeteredInputStream extends FilterInputStream {
+        private final DecodedImageRequest mRequest;
+        private final boolean mRaced;
+        private final long mRaceEpoch;
+        private final long mStartTime = SystemClock.elapsedRealtime();
+        private int mBytes;
+        private boolean mFinished;
+
+        MeteredInputStream(InputStream in, DecodedImageRequest request) {
+            super(in);
+            mRequest = request;
+            mRaced = request.isRaced();
+            mRaceEpoch = mEstimator.beginTransfer(mRaced);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                finish(true);
+            } else {
+                mBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read < 0) {
+                finish(true);
+            } else {
+                mBytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish(false);
+            super.close();
+        }
+
+        /**
+         * @param complete Whether the whole body was read, only then is it sampled
+         */
+        void finish(boolean complete) {
+            if (mFinished) {
+                return;
+            }
+
+            mFinished = true;
+            mEstimator.endTransfer(mRaced);
+            // The primary may have been hedged after its transfer started
+            if (complete && !mRequest.isRaced()) {
+                mEstimator.addBandwidthSample(mRaceEpoch, mBytes,
+                        SystemClock.elapsedRealtime() - mStartTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.os.SystemClock;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+
+/**
+ * {@link Network} that times image downloads and feeds their latencies to a
+ * {@link BandwidthEstimator}. Also lets {@link DecodedImageRequest}s know when they
+ * actually reach the network.
+ */
+public class MeteredNetwork implements Network {
+
+    private final Network mNetwork;
+    private final BandwidthEstimator mEstimator;
+
+    public MeteredNetwork(Network network, BandwidthEstimator estimator) {
+        mNetwork = network;
+        mEstimator = estimator;
+    }
+
+    @Override
+    public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+        if (!(request instanceof DecodedImageRequest)) {
+            return mNetwork.performRequest(request);
+        }
+
+        DecodedImageRequest imageRequest = (DecodedImageRequest) request;
+        imageRequest.markNetworkStart();
+        long start = SystemClock.elapsedRealtime();
+        NetworkResponse response = mNetwork.performRequest(request);
+
+        // Only full image downloads are comparable with each other
+        if (!response.notModified && response.data != null) {
+            mEstimator.addLatencySample(imageRequest.getImageClass(),
+                    SystemClock.elapsedRealtime() - start);
+        }
+        return response;
+    }
+}
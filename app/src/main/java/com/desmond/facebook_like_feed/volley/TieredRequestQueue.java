@@ -0,0 +1,124 @@
+package com.desmond.facebook_like_feed.volley;
+
+import android.graphics.Bitmap;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.android.volley.Cache;
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Network;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.ResponseDelivery;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link RequestQueue} that serves {@link DecodedImageRequest}s from a {@link DiskBitmapCache}
+ * of decoded bitmaps when it can, before falling back to the regular cache and network.
+ *
+ * Lookups run on a single background thread and hits are delivered on the main thread,
+ * just like a regular response.
+ */
+public class TieredRequestQueue extends RequestQueue {
+
+    private final DiskBitmapCache mDecodedCache;
+    private final BandwidthEstimator mBandwidthEstimator;
+    private final ExecutorService mDecodedCacheExecutor = Executors.newSingleThreadExecutor();
+    private final ResponseDelivery mDelivery = new ExecutorDelivery(new Handler(Looper.getMainLooper()));
+
+    private final ImageLoadStats mDecodeStats = new ImageLoadStats("Decoded from original");
+    private final ImageLoadStats mDecodedTierStats = new ImageLoadStats("Read from decoded cache");
+
+    /**
+     * @param bandwidthEstimator Estimator fed by the network, made available to image loaders
+     */
+    public TieredRequestQueue(Cache cache, Network network, DiskBitmapCache decodedCache,
+                              BandwidthEstimator bandwidthEstimator) {
+        super(cache, network);
+        mDecodedCache = decodedCache;
+        mBandwidthEstimator = bandwidthEstimator;
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        mDecodedCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDecodedCache.initialize();
+            }
+        });
+    }
+
+    @Override
+    public <T> Request<T> add(Request<T> request) {
+        if (request instanceof DecodedImageRequest) {
+            final DecodedImageRequest imageRequest = (DecodedImageRequest) request;
+            if (mDecodedCache.contains(imageRequest.getImageCacheKey())) {
+                mDecodedCacheExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadFromDecodedCache(imageRequest);
+                    }
+                });
+                return request;
+            }
+        }
+
+        return super.add(request);
+    }
+
+    /**
+     * Writes a bitmap decoded from an original to the decoded cache, on the background thread
+     */
+    public void putDecoded(final String imageCacheKey, final Bitmap bitmap) {
+        mDecodedCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDecodedCache.put(imageCacheKey, bitmap);
+            }
+        });
+    }
+
+    public BandwidthEstimator getBandwidthEstimator() {
+        return mBandwidthEstimator;
+    }
+
+    /**
+     * Time spent decoding and downsizing originals
+     */
+    public ImageLoadStats getDecodeStats() {
+        return mDecodeStats;
+    }
+
+    /**
+     * Time spent reading decoded bitmaps back from disk
+     */
+    public ImageLoadStats getDecodedTierStats() {
+        return mDecodedTierStats;
+    }
+
+    private void loadFromDecodedCache(DecodedImageRequest request) {
+        if (request.isCanceled()) {
+            return;
+        }
+
+        long startWall = System.nanoTime();
+        long startCpu = Debug.threadCpuTimeNanos();
+        Bitmap bitmap = mDecodedCache.get(request.getImageCacheKey());
+        if (bitmap == null) {
+            // Evicted or unreadable since the check, go through the regular path instead
+            super.add(request);
+            return;
+        }
+        mDecodedTierStats.record(System.nanoTime() - startWall,
+                Debug.threadCpuTimeNanos() - startCpu);
+
+        request.markFromDecodedCache();
+        mDelivery.postResponse(request, Response.<Bitmap>success(bitmap, null));
+    }
+}